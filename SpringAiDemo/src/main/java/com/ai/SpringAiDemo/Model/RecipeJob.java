@@ -0,0 +1,22 @@
+package com.ai.SpringAiDemo.Model;
+
+import java.time.Instant;
+
+public record RecipeJob(
+        String id,
+        Type type,
+        Status status,
+        Object result,
+        String error,
+        Instant submittedAt,
+        Instant completedAt
+) {
+    // Declaration order is queue priority: safe recipes are picked up first
+    public enum Type { SAFE, STRUCTURED, TEXT }
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    public boolean isDone() {
+        return status == Status.SUCCEEDED || status == Status.FAILED;
+    }
+}
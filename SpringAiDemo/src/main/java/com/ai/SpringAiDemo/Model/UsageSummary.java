@@ -0,0 +1,15 @@
+package com.ai.SpringAiDemo.Model;
+
+public record UsageSummary(
+        String endpoint,
+        String model,
+        String userId,
+        Long calls,
+        Long promptTokens,
+        Long completionTokens,
+        Long cachedTokens
+) {
+    public long totalTokens() {
+        return promptTokens + completionTokens;
+    }
+}
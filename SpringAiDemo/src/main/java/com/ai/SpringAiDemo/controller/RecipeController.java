@@ -1,14 +1,33 @@
 package com.ai.SpringAiDemo.controller;
 
 import com.ai.SpringAiDemo.Model.Recipe;
+import com.ai.SpringAiDemo.Model.RecipeJob;
+import com.ai.SpringAiDemo.Model.UsageSummary;
+import com.ai.SpringAiDemo.config.RecipeCodecConfig;
 import com.ai.SpringAiDemo.domain.Allergy;
+import com.ai.SpringAiDemo.domain.RecipeHistoryEntry;
 import com.ai.SpringAiDemo.domain.User;
 import com.ai.SpringAiDemo.persistence.UserRepository;
+import com.ai.SpringAiDemo.service.IdempotencyKeyConflictException;
+import com.ai.SpringAiDemo.service.RecipeJobService;
 import com.ai.SpringAiDemo.service.RecipeService;
+import com.ai.SpringAiDemo.service.TokenBudgetExceededException;
+import com.ai.SpringAiDemo.service.UsageLedgerService;
+import com.ai.SpringAiDemo.service.UserHistoryService;
+import com.ai.SpringAiDemo.service.UserHistoryService.HistoryItem;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/recipes")
 // SECURITY WARNING: @CrossOrigin(origins = "*") allows requests from ANY domain
@@ -17,8 +36,15 @@ import org.springframework.web.bind.annotation.*;
 @CrossOrigin(origins = "*")
 public class RecipeController {
     private final RecipeService recipeService;
-    public RecipeController(RecipeService recipeService) {
+    private final RecipeJobService recipeJobService;
+    private final UserHistoryService userHistoryService;
+    private final UsageLedgerService usageLedgerService;
+    public RecipeController(RecipeService recipeService, RecipeJobService recipeJobService,
+                            UserHistoryService userHistoryService, UsageLedgerService usageLedgerService) {
         this.recipeService = recipeService;
+        this.recipeJobService = recipeJobService;
+        this.userHistoryService = userHistoryService;
+        this.usageLedgerService = usageLedgerService;
     }
 
     @GetMapping("/generate")
@@ -31,7 +57,11 @@ public class RecipeController {
         return ResponseEntity.ok(recipe);
     }
 
-    @GetMapping("/generate-structured")
+    // Negotiated via Accept: JSON by default, CBOR or Smile for compact binary payloads
+    @GetMapping(value = "/generate-structured", produces = {
+            MediaType.APPLICATION_JSON_VALUE,
+            RecipeCodecConfig.APPLICATION_CBOR,
+            RecipeCodecConfig.APPLICATION_SMILE})
     public ResponseEntity<Recipe> generateStructuredRecipe(
             @RequestParam String ingredients,
             @RequestParam(defaultValue = "any") String cuisine,
@@ -52,9 +82,115 @@ public class RecipeController {
                 .body(recipe);
     }
 
+    // Async variants: submit returns 202 with a job id right away, the result is polled from /jobs/{jobId}.
+    // Retries that send the same Idempotency-Key header attach to the existing job instead of starting a new one.
+    @PostMapping("/jobs/generate")
+    public ResponseEntity<RecipeJob> submitRecipeJob(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestParam String ingredients,
+            @RequestParam(defaultValue = "any") String cuisine,
+            @RequestParam(defaultValue = "none") String dietary) {
+
+        RecipeJob job = recipeJobService.submit(RecipeJob.Type.TEXT, idempotencyKey,
+                List.of(ingredients, cuisine, dietary),
+                () -> recipeService.createRecipe(ingredients, cuisine, dietary));
+        return accepted(job);
+    }
+
+    @PostMapping("/jobs/generate-structured")
+    public ResponseEntity<RecipeJob> submitStructuredRecipeJob(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestParam String ingredients,
+            @RequestParam(defaultValue = "any") String cuisine,
+            @RequestParam(defaultValue = "none") String dietary) {
+
+        RecipeJob job = recipeJobService.submit(RecipeJob.Type.STRUCTURED, idempotencyKey,
+                List.of(ingredients, cuisine, dietary),
+                () -> recipeService.createStructuredRecipe(ingredients, cuisine, dietary));
+        return accepted(job);
+    }
+
+    @PostMapping("/jobs/generate-safe")
+    public ResponseEntity<RecipeJob> submitSafeRecipeJob(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestParam String userId,
+            @RequestParam String ingredients,
+            @RequestParam(defaultValue = "any") String cuisine) {
+
+        RecipeJob job = recipeJobService.submit(RecipeJob.Type.SAFE, idempotencyKey,
+                List.of(userId, ingredients, cuisine),
+                () -> recipeService.createSafeRecipe(userId, ingredients, cuisine));
+        return accepted(job);
+    }
+
+    // waitSeconds > 0 long-polls until the job finishes or the (capped) wait runs out.
+    // Handled asynchronously, so a waiting client does not hold a servlet thread.
+    @GetMapping("/jobs/{jobId}")
+    public CompletableFuture<ResponseEntity<RecipeJob>> getRecipeJob(
+            @PathVariable String jobId,
+            @RequestParam(defaultValue = "0") long waitSeconds) {
+
+        return recipeJobService.awaitJob(jobId, Duration.ofSeconds(waitSeconds))
+                .map(job -> job.thenApply(ResponseEntity::ok))
+                .orElse(CompletableFuture.completedFuture(ResponseEntity.notFound().build()));
+    }
+
+    @GetMapping("/history")
+    public ResponseEntity<List<HistoryItem>> getHistory(@RequestParam String userId) {
+        return ResponseEntity.ok(userHistoryService.getHistory(userId));
+    }
+
+    // Feedback steers later generate-safe prompts; disliked recipes are never served again as repeats
+    @PostMapping("/history/{entryId}/feedback")
+    public ResponseEntity<HistoryItem> recordFeedback(
+            @PathVariable Long entryId,
+            @RequestParam String userId,
+            @RequestParam RecipeHistoryEntry.Feedback feedback) {
+
+        return userHistoryService.recordFeedback(userId, entryId, feedback)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    // Token usage grouped by endpoint, model and user; defaults to the last 24 hours
+    @GetMapping("/usage")
+    public ResponseEntity<List<UsageSummary>> getUsage(
+            @RequestParam(required = false) Instant from,
+            @RequestParam(required = false) Instant to,
+            @RequestParam(required = false) String endpoint,
+            @RequestParam(required = false) String userId) {
+
+        Instant end = to != null ? to : Instant.now();
+        Instant start = from != null ? from : end.minus(Duration.ofDays(1));
+        return ResponseEntity.ok(usageLedgerService.getUsage(start, end, endpoint, userId));
+    }
+
+    @ExceptionHandler(TokenBudgetExceededException.class)
+    public ResponseEntity<String> tokenBudgetExceeded(TokenBudgetExceededException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(e.getMessage());
+    }
+
+    @ExceptionHandler(IdempotencyKeyConflictException.class)
+    public ResponseEntity<String> idempotencyKeyConflict(IdempotencyKeyConflictException e) {
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(e.getMessage());
+    }
+
+    @ExceptionHandler(RejectedExecutionException.class)
+    public ResponseEntity<String> jobQueueFull() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .body("Recipe job queue is full, please retry later");
+    }
+
     @GetMapping("/health")
     public ResponseEntity<String> health() {
         return ResponseEntity.ok("Recipe service is running!");
     }
 
+    private ResponseEntity<RecipeJob> accepted(RecipeJob job) {
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/recipes/jobs/" + job.id()))
+                .body(job);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.ai.SpringAiDemo.domain;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import org.springframework.data.jpa.domain.AbstractPersistable;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+@Builder
+
+@Entity
+@Table(name = "recipe_history", indexes = @Index(name = "IX_recipe_history_user", columnList = "userId, createdAt"))
+public class RecipeHistoryEntry extends AbstractPersistable<Long> {
+    @NotNull
+    String userId;
+    // Normalized allergens + ingredients + cuisine, used to recognise repeat requests
+    @NotNull
+    String requestKey;
+    @NotNull
+    String title;
+    @Lob
+    @NotNull
+    String recipe;
+    @Enumerated(EnumType.STRING)
+    Feedback feedback;
+    @NotNull
+    Instant createdAt;
+
+    public enum Feedback { LIKED, DISLIKED }
+}
@@ -0,0 +1,32 @@
+package com.ai.SpringAiDemo.domain;
+
+import jakarta.persistence.*;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+import org.springframework.data.jpa.domain.AbstractPersistable;
+
+import java.time.Instant;
+
+// One flushed batch of token usage for an endpoint/model/user combination
+@Getter
+@Setter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@AllArgsConstructor
+@Builder
+
+@Entity
+@Table(name = "token_usage", indexes = @Index(name = "IX_token_usage_recorded", columnList = "recordedAt"))
+public class TokenUsage extends AbstractPersistable<Long> {
+    @NotNull
+    String endpoint;
+    @NotNull
+    String model;
+    @NotNull
+    String userId;
+    long calls;
+    long promptTokens;
+    long completionTokens;
+    long cachedTokens;
+    @NotNull
+    Instant recordedAt;
+}
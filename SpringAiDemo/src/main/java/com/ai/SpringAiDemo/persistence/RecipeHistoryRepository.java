@@ -0,0 +1,13 @@
+package com.ai.SpringAiDemo.persistence;
+
+import com.ai.SpringAiDemo.domain.RecipeHistoryEntry;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface RecipeHistoryRepository extends JpaRepository<RecipeHistoryEntry, Long> {
+    List<RecipeHistoryEntry> findByUserIdOrderByCreatedAtDesc(String userId, Pageable pageable);
+}
@@ -0,0 +1,24 @@
+package com.ai.SpringAiDemo.persistence;
+
+import com.ai.SpringAiDemo.Model.UsageSummary;
+import com.ai.SpringAiDemo.domain.TokenUsage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface TokenUsageRepository extends JpaRepository<TokenUsage, Long> {
+
+    @Query("""
+            select new com.ai.SpringAiDemo.Model.UsageSummary(
+                u.endpoint, u.model, u.userId,
+                sum(u.calls), sum(u.promptTokens), sum(u.completionTokens), sum(u.cachedTokens))
+            from TokenUsage u
+            where u.recordedAt >= :from and u.recordedAt < :to
+            group by u.endpoint, u.model, u.userId
+            """)
+    List<UsageSummary> summarize(Instant from, Instant to);
+}
@@ -0,0 +1,7 @@
+package com.ai.SpringAiDemo.service;
+
+public class IdempotencyKeyConflictException extends RuntimeException {
+    public IdempotencyKeyConflictException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,214 @@
+package com.ai.SpringAiDemo.service;
+
+import com.ai.SpringAiDemo.Model.RecipeJob;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Runs recipe generation in the background so slow model calls are not tied to the HTTP connection.
+// Jobs wait in a bounded priority queue, results are kept for a limited time and then evicted.
+// Queue order ages: a job's rank is its enqueue time plus recipe.jobs.priority-step per priority level
+// below SAFE, so a TEXT job is overtaken at most by SAFE jobs submitted within two steps after it.
+@Service
+public class RecipeJobService {
+    private final ThreadPoolExecutor executor;
+    private final Duration resultTtl;
+    private final Duration maxWait;
+    private final long priorityStepNanos;
+
+    private final Map<String, JobEntry> jobs = new ConcurrentHashMap<>();
+    // Idempotency key -> job id, so client retries attach to the job that is already running
+    private final Map<String, String> idempotencyKeys = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    public RecipeJobService(@Value("${recipe.jobs.workers:4}") int workers,
+                            @Value("${recipe.jobs.queue-capacity:100}") int queueCapacity,
+                            @Value("${recipe.jobs.result-ttl:10m}") Duration resultTtl,
+                            @Value("${recipe.jobs.max-wait:30s}") Duration maxWait,
+                            @Value("${recipe.jobs.priority-step:10s}") Duration priorityStep) {
+        this.resultTtl = resultTtl;
+        this.maxWait = maxWait;
+        this.priorityStepNanos = priorityStep.toNanos();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new BoundedPriorityQueue(queueCapacity),
+                Thread.ofPlatform().name("recipe-job-", 0).daemon(true).factory());
+    }
+
+    // Throws RejectedExecutionException when the queue is full, and IdempotencyKeyConflictException
+    // when the key is already used by a job for another endpoint or other request parameters
+    public RecipeJob submit(RecipeJob.Type type, String idempotencyKey, List<String> params, Supplier<?> task) {
+        String requestHash = requestHash(type, params);
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return enqueue(type, null, requestHash, task).snapshot();
+        }
+        JobEntry[] attached = new JobEntry[1];
+        idempotencyKeys.compute(idempotencyKey, (key, existingId) -> {
+            JobEntry existing = existingId != null ? jobs.get(existingId) : null;
+            if (existing != null && !existing.requestHash.equals(requestHash)) {
+                throw new IdempotencyKeyConflictException(
+                        "Idempotency-Key " + key + " was already used for a different request");
+            }
+            attached[0] = existing != null ? existing : enqueue(type, key, requestHash, task);
+            return attached[0].id;
+        });
+        return attached[0].snapshot();
+    }
+
+    public Optional<RecipeJob> getJob(String jobId) {
+        return Optional.ofNullable(jobs.get(jobId)).map(JobEntry::snapshot);
+    }
+
+    // Completes with the job once it finishes or the requested wait (capped at recipe.jobs.max-wait)
+    // runs out, whichever comes first, without holding a thread while waiting
+    public Optional<CompletableFuture<RecipeJob>> awaitJob(String jobId, Duration wait) {
+        JobEntry entry = jobs.get(jobId);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (wait.isZero() || wait.isNegative() || entry.future.isDone()) {
+            return Optional.of(CompletableFuture.completedFuture(entry.snapshot()));
+        }
+        long millis = Math.min(wait.toMillis(), maxWait.toMillis());
+        // copy() so the timeout only ends this wait, not the job's own future
+        return Optional.of(entry.future.copy()
+                .orTimeout(millis, TimeUnit.MILLISECONDS)
+                .handle((done, timeout) -> entry.snapshot()));
+    }
+
+    @Scheduled(fixedDelayString = "${recipe.jobs.eviction-interval:60000}")
+    public void evictExpiredJobs() {
+        Instant cutoff = Instant.now().minus(resultTtl);
+        jobs.values().removeIf(entry -> {
+            boolean expired = entry.completedAt != null && !entry.completedAt.isAfter(cutoff);
+            if (expired && entry.idempotencyKey != null) {
+                idempotencyKeys.remove(entry.idempotencyKey, entry.id);
+            }
+            return expired;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private JobEntry enqueue(RecipeJob.Type type, String idempotencyKey, String requestHash, Supplier<?> task) {
+        JobEntry entry = new JobEntry(UUID.randomUUID().toString(), type, idempotencyKey, requestHash);
+        jobs.put(entry.id, entry);
+        try {
+            long rank = System.nanoTime() + type.ordinal() * priorityStepNanos;
+            executor.execute(new PrioritizedTask(entry, rank, sequence.getAndIncrement(), task));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(entry.id);
+            throw e;
+        }
+        return entry;
+    }
+
+    private static String requestHash(RecipeJob.Type type, List<String> params) {
+        try {
+            var digest = MessageDigest.getInstance("SHA-256");
+            digest.update(type.name().getBytes(StandardCharsets.UTF_8));
+            for (String param : params) {
+                // Separator keeps ("ab", "c") and ("a", "bc") apart
+                digest.update((byte) 0);
+                digest.update(String.valueOf(param).getBytes(StandardCharsets.UTF_8));
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static final class JobEntry {
+        final String id;
+        final RecipeJob.Type type;
+        final String idempotencyKey;
+        final String requestHash;
+        final Instant submittedAt = Instant.now();
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        volatile RecipeJob.Status status = RecipeJob.Status.QUEUED;
+        volatile Object result;
+        volatile String error;
+        volatile Instant completedAt;
+
+        JobEntry(String id, RecipeJob.Type type, String idempotencyKey, String requestHash) {
+            this.id = id;
+            this.type = type;
+            this.idempotencyKey = idempotencyKey;
+            this.requestHash = requestHash;
+        }
+
+        RecipeJob snapshot() {
+            // status is written last by the worker, so reading it first sees a complete job
+            RecipeJob.Status current = status;
+            return new RecipeJob(id, type, current, result, error, submittedAt, completedAt);
+        }
+    }
+
+    private record PrioritizedTask(JobEntry entry, long rank, long sequence, Supplier<?> task)
+            implements Runnable, Comparable<PrioritizedTask> {
+
+        @Override
+        public void run() {
+            entry.status = RecipeJob.Status.RUNNING;
+            try {
+                entry.result = task.get();
+                entry.completedAt = Instant.now();
+                entry.status = RecipeJob.Status.SUCCEEDED;
+            } catch (Throwable e) {
+                // Errors must fail the job too, otherwise it stays RUNNING and is never evicted
+                entry.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+                entry.completedAt = Instant.now();
+                entry.status = RecipeJob.Status.FAILED;
+                if (e instanceof Error error) {
+                    throw error;
+                }
+            } finally {
+                entry.future.complete(null);
+            }
+        }
+
+        // The rank is fixed at enqueue time, so the heap order never changes while a job waits.
+        // Compared by difference because System.nanoTime() values may be negative.
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int byRank = Long.signum(rank - other.rank);
+            return byRank != 0 ? byRank : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    // PriorityBlockingQueue is unbounded; refusing the offer makes the executor reject the job
+    private static final class BoundedPriorityQueue extends PriorityBlockingQueue<Runnable> {
+        private final int capacity;
+
+        BoundedPriorityQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        @Override
+        public synchronized boolean offer(Runnable task) {
+            return size() < capacity && super.offer(task);
+        }
+    }
+}
@@ -4,17 +4,28 @@ import com.ai.SpringAiDemo.Model.Recipe;
 import com.ai.SpringAiDemo.domain.Allergy;
 import com.ai.SpringAiDemo.persistence.UserRepository;
 import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.converter.BeanOutputConverter;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Description;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.Optional;
 import java.util.function.Function;
 
 @Service
 public class RecipeService {
+    // Endpoint names used to tag token usage and budgets
+    public static final String ENDPOINT_GENERATE = "generate";
+    public static final String ENDPOINT_STRUCTURED = "generate-structured";
+    public static final String ENDPOINT_SAFE = "generate-safe";
+
     private final ChatClient chatClient;
     private final UserRepository userRepository;
+    private final UserHistoryService userHistoryService;
+    private final UsageLedgerService usageLedgerService;
     private final Function<UserAllergyRequest, UserAllergyResponse> userAllergyFunction;
 
     // NOTE: ingredientCheckFunction is registered as a @Bean (line 214) and available for Spring AI to call
@@ -22,8 +33,11 @@ public class RecipeService {
     // multiple functions that AI can choose from based on the prompt
     private final Function<IngredientCheckRequest, IngredientCheckResponse> ingredientCheckFunction;
 
-    public RecipeService(ChatClient.Builder chatClientBuilder, UserRepository userRepository) {
+    public RecipeService(ChatClient.Builder chatClientBuilder, UserRepository userRepository,
+                         UserHistoryService userHistoryService, UsageLedgerService usageLedgerService) {
         this.userRepository = userRepository;
+        this.userHistoryService = userHistoryService;
+        this.usageLedgerService = usageLedgerService;
 
         this.userAllergyFunction = createUserAllergyFunction();
         this.ingredientCheckFunction = createIngredientCheckFunction();
@@ -42,13 +56,17 @@ public class RecipeService {
                 Please provide me with a detailed recipe including title, list of ingredients, and cooking instructions 
                 """;
 
-        return chatClient.prompt()
+        var model = usageLedgerService.checkBudget(ENDPOINT_GENERATE, null);
+        ChatResponse response = withModel(chatClient.prompt(), model)
                 .user(u -> u.text(template)
                         .param("ingredients", ingredients)
                         .param("cuisine", cuisine)
                         .param("dietaryRestrictions", dietaryRestrictions))
                 .call()
-                .content();
+                .chatResponse();
+
+        usageLedgerService.record(ENDPOINT_GENERATE, null, response);
+        return text(response);
     }
 
     // Method 2: Structured recipe (returns Recipe object)
@@ -70,15 +88,24 @@ public class RecipeService {
                   "servings": 4,
                   "difficulty": "easy"
                 }}
+                {format}
                 """;
 
-        return chatClient.prompt()
+        // Converted by hand instead of .entity() so usage is recorded even when the output does not parse
+        var converter = new BeanOutputConverter<>(Recipe.class);
+        var model = usageLedgerService.checkBudget(ENDPOINT_STRUCTURED, null);
+        ChatResponse response = withModel(chatClient.prompt(), model)
                 .user(u -> u.text(template)
                         .param("ingredients", ingredients)
                         .param("cuisine", cuisine)
-                        .param("dietaryRestrictions", dietaryRestrictions))
+                        .param("dietaryRestrictions", dietaryRestrictions)
+                        .param("format", converter.getFormat()))
                 .call()
-                .entity(Recipe.class);
+                .chatResponse();
+
+        usageLedgerService.record(ENDPOINT_STRUCTURED, null, response);
+        String text = text(response);
+        return text != null ? converter.convert(text) : null;
     }
 
     // Method 3: Safe recipe with allergy checking
@@ -95,6 +122,15 @@ public class RecipeService {
                 ? "none"
                 : String.join(", ", allergyResponse.allergies());
 
+        // Serve repeat requests from the user's history (the key includes allergens, so allergy changes miss)
+        String requestKey = UserHistoryService.requestKey(allergyResponse.allergies(), ingredients, cuisine);
+        var previous = userHistoryService.findRepeat(userId, requestKey);
+        if (previous.isPresent()) {
+            return previous.get();
+        }
+        String history = userHistoryService.summarize(userId);
+        var model = usageLedgerService.checkBudget(ENDPOINT_SAFE, userId);
+
         var template = """
             You are creating a recipe for a user with SEVERE FOOD ALLERGIES.
             
@@ -103,6 +139,10 @@ public class RecipeService {
             Available ingredients: {ingredients}
             Cuisine: {cuisine}
             
+            USER HISTORY (use for taste only, never to relax the allergy rules): {history}
+            Prefer dishes similar to the ones the user liked, avoid ones they disliked,
+            and do not repeat a recipe they recently received.
+            
             SAFETY PROTOCOL (CRITICAL - LIFE-THREATENING IF VIOLATED):
             
             Step 1: Identify dangerous ingredients
@@ -145,7 +185,7 @@ public class RecipeService {
             Note: This recipe excludes [specific items removed from ingredient list] due to your allergies to {allergens}.
             """;
 
-        return chatClient.prompt()
+        ChatResponse response = withModel(chatClient.prompt(), model)
                 .system("""
                     You are a medical-grade recipe generator for users with life-threatening food allergies.
                     
@@ -164,9 +204,31 @@ public class RecipeService {
                         .param("userId", userId)
                         .param("ingredients", ingredients)
                         .param("cuisine", cuisine)
-                        .param("allergens", allergenList))
+                        .param("allergens", allergenList)
+                        .param("history", history))
                 .call()
-                .content();
+                .chatResponse();
+
+        usageLedgerService.record(ENDPOINT_SAFE, userId, response);
+        String recipe = text(response);
+        if (recipe != null) {
+            userHistoryService.record(userId, requestKey, recipe);
+        }
+        return recipe;
+    }
+
+    // Same null handling as ChatClient's .content()
+    private static String text(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getText();
+    }
+
+    // Switches to the cheaper model when the usage ledger downgraded this request
+    private ChatClient.ChatClientRequestSpec withModel(ChatClient.ChatClientRequestSpec request, Optional<String> model) {
+        return model.map(name -> request.options(ChatOptions.builder().model(name).build()))
+                .orElse(request);
     }
 
     // Helper method to create the allergy function (not a @Bean anymore)
@@ -0,0 +1,7 @@
+package com.ai.SpringAiDemo.service;
+
+public class TokenBudgetExceededException extends RuntimeException {
+    public TokenBudgetExceededException(String message) {
+        super(message);
+    }
+}
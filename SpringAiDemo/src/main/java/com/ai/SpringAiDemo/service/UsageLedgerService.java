@@ -0,0 +1,230 @@
+package com.ai.SpringAiDemo.service;
+
+import com.ai.SpringAiDemo.Model.UsageSummary;
+import com.ai.SpringAiDemo.domain.TokenUsage;
+import com.ai.SpringAiDemo.persistence.TokenUsageRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Token accounting per endpoint, model and user. Calls only bump LongAdder counters in a time bucket;
+// a scheduled flush writes the accumulated numbers to the database in one batch, stamped with the
+// bucket start so rows always fall into the budget window their calls were made in.
+// Budgets are enforced per fixed window (recipe.usage.budget-window): once an endpoint is over its
+// budget requests are rejected, once a user is over theirs requests are downgraded to
+// recipe.usage.downgrade-model, or rejected if no downgrade model is configured. 0 disables a budget.
+// Budgets are soft limits, see checkBudget.
+// Anonymous calls have no user to charge, so only the endpoint budget applies to them.
+@Service
+public class UsageLedgerService {
+    public static final String ANONYMOUS = "anonymous";
+    private static final long MAX_BUCKET_MILLIS = Duration.ofMinutes(1).toMillis();
+
+    private final TokenUsageRepository usageRepository;
+    private final Duration budgetWindow;
+    private final long userTokenBudget;
+    private final long endpointTokenBudget;
+    private final String downgradeModel;
+    private final long bucketMillis;
+
+    // Usage not yet flushed. Keys are kept after a flush so that recording never races with removal.
+    private final Map<UsageKey, UsageCounters> pending = new ConcurrentHashMap<>();
+    // Tokens spent in the current budget window, flushed or not
+    private final Map<String, LongAdder> userSpend = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> endpointSpend = new ConcurrentHashMap<>();
+    private volatile long currentWindow;
+    // Separate monitors so request threads rolling the window never wait for a database flush
+    private final Object windowLock = new Object();
+    private final Object flushLock = new Object();
+
+    public UsageLedgerService(TokenUsageRepository usageRepository,
+                              @Value("${recipe.usage.budget-window:1d}") Duration budgetWindow,
+                              @Value("${recipe.usage.user-token-budget:0}") long userTokenBudget,
+                              @Value("${recipe.usage.endpoint-token-budget:0}") long endpointTokenBudget,
+                              @Value("${recipe.usage.downgrade-model:}") String downgradeModel,
+                              @Value("${spring.ai.openai.chat.options.model:}") String defaultModel) {
+        // A downgrade to the model that is already in use would never limit anything
+        String effectiveModel = defaultModel.isBlank() ? OpenAiApi.DEFAULT_CHAT_MODEL : defaultModel;
+        if (!downgradeModel.isBlank() && downgradeModel.equalsIgnoreCase(effectiveModel)) {
+            throw new IllegalStateException("recipe.usage.downgrade-model (" + downgradeModel
+                    + ") must differ from the chat model in use (" + effectiveModel + ")");
+        }
+        this.usageRepository = usageRepository;
+        this.budgetWindow = budgetWindow;
+        this.userTokenBudget = userTokenBudget;
+        this.endpointTokenBudget = endpointTokenBudget;
+        this.downgradeModel = downgradeModel;
+        // Buckets must tile the budget window exactly, otherwise a bucket could straddle a window boundary
+        long windowMillis = budgetWindow.toMillis();
+        this.bucketMillis = windowMillis % MAX_BUCKET_MILLIS == 0 ? MAX_BUCKET_MILLIS : windowMillis;
+    }
+
+    // Seeds the current window from usage already flushed to the database. Budgets only carry over a
+    // restart when the datasource is persistent; the default in-memory H2 database starts empty.
+    @PostConstruct
+    public void loadCurrentWindow() {
+        currentWindow = windowIndex(Instant.now());
+        for (UsageSummary summary : usageRepository.summarize(windowStart(currentWindow), windowStart(currentWindow + 1))) {
+            addSpend(summary.endpoint(), summary.userId(), summary.totalTokens());
+        }
+    }
+
+    // Returns a cheaper model to use instead of the default, or throws when the request must be rejected.
+    // Budgets are soft limits: spend is only known after the model call, so concurrent requests that all
+    // pass this check can overshoot a budget by up to one response each.
+    public Optional<String> checkBudget(String endpoint, String userId) {
+        rollWindowIfNeeded();
+        if (overBudget(endpointSpend, endpoint, endpointTokenBudget)) {
+            throw new TokenBudgetExceededException("Token budget exhausted for endpoint " + endpoint);
+        }
+        String user = userOrAnonymous(userId);
+        if (!user.equals(ANONYMOUS) && overBudget(userSpend, user, userTokenBudget)) {
+            if (downgradeModel.isBlank()) {
+                throw new TokenBudgetExceededException("Token budget exhausted for user " + user);
+            }
+            return Optional.of(downgradeModel);
+        }
+        return Optional.empty();
+    }
+
+    public void record(String endpoint, String userId, ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return;
+        }
+        ChatResponseMetadata metadata = response.getMetadata();
+        Usage usage = metadata.getUsage();
+        long promptTokens = usage.getPromptTokens() != null ? usage.getPromptTokens() : 0;
+        long completionTokens = usage.getCompletionTokens() != null ? usage.getCompletionTokens() : 0;
+        String model = metadata.getModel() == null || metadata.getModel().isBlank() ? "unknown" : metadata.getModel();
+        String user = userOrAnonymous(userId);
+        long now = System.currentTimeMillis();
+        Instant bucket = Instant.ofEpochMilli(now - now % bucketMillis);
+
+        UsageCounters counters = pending.computeIfAbsent(new UsageKey(endpoint, model, user, bucket), key -> new UsageCounters());
+        counters.calls.increment();
+        counters.promptTokens.add(promptTokens);
+        counters.completionTokens.add(completionTokens);
+        counters.cachedTokens.add(cachedTokens(usage));
+
+        rollWindowIfNeeded();
+        addSpend(endpoint, user, promptTokens + completionTokens);
+    }
+
+    @Scheduled(fixedDelayString = "${recipe.usage.flush-interval:10000}")
+    @PreDestroy
+    public void flush() {
+        synchronized (flushLock) {
+            flushPending();
+        }
+    }
+
+    private void flushPending() {
+        long now = System.currentTimeMillis();
+        // Buckets that ended more than a bucket ago no longer receive increments and can be dropped
+        Instant staleBefore = Instant.ofEpochMilli(now - now % bucketMillis - bucketMillis);
+        List<TokenUsage> batch = new ArrayList<>();
+        pending.forEach((key, counters) -> {
+            if (key.bucket().isBefore(staleBefore)) {
+                pending.remove(key, counters);
+            }
+            // sumThenReset hands concurrent increments to the next flush instead of losing them
+            long calls = counters.calls.sumThenReset();
+            long promptTokens = counters.promptTokens.sumThenReset();
+            long completionTokens = counters.completionTokens.sumThenReset();
+            long cachedTokens = counters.cachedTokens.sumThenReset();
+            if (calls == 0 && promptTokens == 0 && completionTokens == 0) {
+                return;
+            }
+            batch.add(TokenUsage.builder()
+                    .endpoint(key.endpoint())
+                    .model(key.model())
+                    .userId(key.userId())
+                    .calls(calls)
+                    .promptTokens(promptTokens)
+                    .completionTokens(completionTokens)
+                    .cachedTokens(cachedTokens)
+                    .recordedAt(key.bucket())
+                    .build());
+        });
+        if (!batch.isEmpty()) {
+            usageRepository.saveAll(batch);
+        }
+    }
+
+    // Usage between from (inclusive) and to (exclusive); endpoint and userId filters are optional.
+    // Reads flushed data only, so the last recipe.usage.flush-interval of calls may not be included yet.
+    public List<UsageSummary> getUsage(Instant from, Instant to, String endpoint, String userId) {
+        return usageRepository.summarize(from, to).stream()
+                .filter(summary -> endpoint == null || summary.endpoint().equals(endpoint))
+                .filter(summary -> userId == null || summary.userId().equals(userId))
+                .toList();
+    }
+
+    private void rollWindowIfNeeded() {
+        long window = windowIndex(Instant.now());
+        if (window != currentWindow) {
+            synchronized (windowLock) {
+                if (window != currentWindow) {
+                    userSpend.clear();
+                    endpointSpend.clear();
+                    currentWindow = window;
+                }
+            }
+        }
+    }
+
+    private void addSpend(String endpoint, String userId, long tokens) {
+        endpointSpend.computeIfAbsent(endpoint, key -> new LongAdder()).add(tokens);
+        userSpend.computeIfAbsent(userId, key -> new LongAdder()).add(tokens);
+    }
+
+    private static boolean overBudget(Map<String, LongAdder> spend, String key, long budget) {
+        LongAdder spent = spend.get(key);
+        return budget > 0 && spent != null && spent.sum() >= budget;
+    }
+
+    private static long cachedTokens(Usage usage) {
+        if (usage.getNativeUsage() instanceof OpenAiApi.Usage openAiUsage
+                && openAiUsage.promptTokensDetails() != null
+                && openAiUsage.promptTokensDetails().cachedTokens() != null) {
+            return openAiUsage.promptTokensDetails().cachedTokens();
+        }
+        return 0;
+    }
+
+    private static String userOrAnonymous(String userId) {
+        return userId == null || userId.isBlank() ? ANONYMOUS : userId;
+    }
+
+    private long windowIndex(Instant instant) {
+        return instant.toEpochMilli() / budgetWindow.toMillis();
+    }
+
+    private Instant windowStart(long window) {
+        return Instant.ofEpochMilli(window * budgetWindow.toMillis());
+    }
+
+    private record UsageKey(String endpoint, String model, String userId, Instant bucket) {}
+
+    private static final class UsageCounters {
+        final LongAdder calls = new LongAdder();
+        final LongAdder promptTokens = new LongAdder();
+        final LongAdder completionTokens = new LongAdder();
+        final LongAdder cachedTokens = new LongAdder();
+    }
+}
@@ -0,0 +1,185 @@
+package com.ai.SpringAiDemo.service;
+
+import com.ai.SpringAiDemo.domain.RecipeHistoryEntry;
+import com.ai.SpringAiDemo.domain.RecipeHistoryEntry.Feedback;
+import com.ai.SpringAiDemo.persistence.RecipeHistoryRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Per-user recipe history and feedback. Everything is stored in the database; a bounded LRU
+// working set keeps compact summaries (ids, titles, feedback - never the recipe text) of the
+// most recently active users in memory.
+@Service
+public class UserHistoryService {
+    private static final int SUMMARY_SIZE = 5;
+
+    private final RecipeHistoryRepository historyRepository;
+    private final int entriesPerUser;
+    private final Map<String, UserHistory> workingSet;
+
+    public UserHistoryService(RecipeHistoryRepository historyRepository,
+                              @Value("${recipe.history.working-set-size:1000}") int workingSetSize,
+                              @Value("${recipe.history.entries-per-user:20}") int entriesPerUser) {
+        this.historyRepository = historyRepository;
+        this.entriesPerUser = entriesPerUser;
+        this.workingSet = Collections.synchronizedMap(new LinkedHashMap<String, UserHistory>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, UserHistory> eldest) {
+                return size() > workingSetSize;
+            }
+        });
+    }
+
+    // Same allergens, ingredients and cuisine (ignoring case, order and spacing) give the same key
+    public static String requestKey(List<String> allergens, String ingredients, String cuisine) {
+        return normalize(String.join(",", allergens)) + "|" + normalize(ingredients) + "|" + cuisine.trim().toLowerCase();
+    }
+
+    // A previously generated recipe for the same request, unless the user disliked it
+    public Optional<String> findRepeat(String userId, String requestKey) {
+        return history(userId).find(requestKey)
+                .flatMap(item -> historyRepository.findById(item.id()))
+                .map(RecipeHistoryEntry::getRecipe);
+    }
+
+    // Short text for the prompt: a handful of titles instead of the full history
+    public String summarize(String userId) {
+        List<HistoryItem> items = history(userId).items();
+        if (items.isEmpty()) {
+            return "none";
+        }
+        String liked = titles(items, Feedback.LIKED);
+        String disliked = titles(items, Feedback.DISLIKED);
+        String recent = items.stream().limit(SUMMARY_SIZE).map(HistoryItem::title).collect(Collectors.joining("; "));
+
+        var summary = new StringBuilder();
+        if (!liked.isEmpty()) summary.append("Liked: ").append(liked).append(". ");
+        if (!disliked.isEmpty()) summary.append("Disliked: ").append(disliked).append(". ");
+        summary.append("Recently received: ").append(recent).append('.');
+        return summary.toString();
+    }
+
+    public HistoryItem record(String userId, String requestKey, String recipe) {
+        RecipeHistoryEntry saved = historyRepository.save(RecipeHistoryEntry.builder()
+                .userId(userId)
+                .requestKey(requestKey)
+                .title(extractTitle(recipe))
+                .recipe(recipe)
+                .createdAt(Instant.now())
+                .build());
+        HistoryItem item = HistoryItem.of(saved);
+        // Always go through history(): a concurrent cold load may have read the database before this
+        // save and cached a snapshot without the entry. add() skips it if the load already saw it.
+        history(userId).add(item);
+        return item;
+    }
+
+    public Optional<HistoryItem> recordFeedback(String userId, Long entryId, Feedback feedback) {
+        return historyRepository.findById(entryId)
+                .filter(entry -> entry.getUserId().equals(userId))
+                .map(entry -> {
+                    entry.setFeedback(feedback);
+                    HistoryItem item = HistoryItem.of(historyRepository.save(entry));
+                    history(userId).replace(item);
+                    return item;
+                });
+    }
+
+    public List<HistoryItem> getHistory(String userId) {
+        return history(userId).items();
+    }
+
+    private UserHistory history(String userId) {
+        UserHistory cached = workingSet.get(userId);
+        if (cached != null) {
+            return cached;
+        }
+        // Load outside the map lock so a cold user does not block everyone else
+        var loaded = new UserHistory(entriesPerUser, historyRepository
+                .findByUserIdOrderByCreatedAtDesc(userId, PageRequest.of(0, entriesPerUser))
+                .stream()
+                .map(HistoryItem::of)
+                .toList());
+        UserHistory existing = workingSet.putIfAbsent(userId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    private static String titles(List<HistoryItem> items, Feedback feedback) {
+        return items.stream()
+                .filter(item -> item.feedback() == feedback)
+                .limit(SUMMARY_SIZE)
+                .map(HistoryItem::title)
+                .collect(Collectors.joining("; "));
+    }
+
+    private static String normalize(String list) {
+        return Arrays.stream(list.split(","))
+                .map(s -> s.trim().toLowerCase())
+                .filter(s -> !s.isEmpty())
+                .sorted()
+                .distinct()
+                .collect(Collectors.joining(","));
+    }
+
+    // The recipe prompts put the title on the first line, sometimes wrapped in markdown or brackets
+    static String extractTitle(String recipe) {
+        return recipe.lines()
+                .map(line -> line.replaceAll("[#*\\[\\]]", "").trim())
+                .filter(line -> !line.isEmpty())
+                .findFirst()
+                .map(title -> title.length() > 120 ? title.substring(0, 120) : title)
+                .orElse("Untitled recipe");
+    }
+
+    public record HistoryItem(Long id, String requestKey, String title, Feedback feedback, Instant createdAt) {
+        static HistoryItem of(RecipeHistoryEntry entry) {
+            return new HistoryItem(entry.getId(), entry.getRequestKey(), entry.getTitle(),
+                    entry.getFeedback(), entry.getCreatedAt());
+        }
+    }
+
+    // Newest first, capped at entriesPerUser
+    private static final class UserHistory {
+        private final int capacity;
+        private final Deque<HistoryItem> items;
+
+        UserHistory(int capacity, List<HistoryItem> items) {
+            this.capacity = capacity;
+            this.items = new ArrayDeque<>(items);
+        }
+
+        synchronized void add(HistoryItem item) {
+            if (items.stream().anyMatch(existing -> existing.id().equals(item.id()))) {
+                return;
+            }
+            items.addFirst(item);
+            while (items.size() > capacity) {
+                items.removeLast();
+            }
+        }
+
+        synchronized void replace(HistoryItem item) {
+            List<HistoryItem> updated = items.stream()
+                    .map(existing -> existing.id().equals(item.id()) ? item : existing)
+                    .toList();
+            items.clear();
+            items.addAll(updated);
+        }
+
+        synchronized Optional<HistoryItem> find(String requestKey) {
+            return items.stream()
+                    .filter(item -> item.requestKey().equals(requestKey))
+                    .filter(item -> item.feedback() != Feedback.DISLIKED)
+                    .findFirst();
+        }
+
+        synchronized List<HistoryItem> items() {
+            return List.copyOf(items);
+        }
+    }
+}
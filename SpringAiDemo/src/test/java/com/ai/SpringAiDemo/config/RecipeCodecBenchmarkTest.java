@@ -0,0 +1,113 @@
+package com.ai.SpringAiDemo.config;
+
+import com.ai.SpringAiDemo.Model.Recipe;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.util.JsonRecyclerPools;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeCodecBenchmarkTest {
+
+    private static final List<Recipe> BATCH = IntStream.range(0, 100)
+            .mapToObj(i -> new Recipe(
+                    "Lemon Herb Chicken " + i,
+                    List.of("2 chicken breasts", "1 lemon, juiced", "2 tbsp olive oil",
+                            "3 garlic cloves, minced", "1 tsp dried thyme", "salt and pepper to taste"),
+                    List.of("Marinate the chicken in lemon juice, oil, garlic and thyme for 30 minutes",
+                            "Preheat the oven to 200C",
+                            "Roast the chicken for 25 minutes until cooked through",
+                            "Rest for 5 minutes before serving"),
+                    "45 minutes",
+                    4,
+                    "medium"))
+            .toList();
+
+    // Mappers built the same way the application builds them, so the shared recycler pool is measured too
+    private final RecipeCodecConfig config = new RecipeCodecConfig();
+    private final ObjectMapper json = builder().build();
+    private final ObjectMapper cbor = config.cborHttpMessageConverter(builder()).getObjectMapper();
+    private final ObjectMapper smile = config.smileHttpMessageConverter(builder()).getObjectMapper();
+
+    private Jackson2ObjectMapperBuilder builder() {
+        var builder = new Jackson2ObjectMapperBuilder();
+        config.sharedBufferJsonFactory().customize(builder);
+        return builder;
+    }
+
+    @Test
+    void testConfiguredMappers_UseBinaryFactoriesAndSharedRecyclerPool() {
+        assertInstanceOf(CBORFactory.class, cbor.getFactory());
+        assertInstanceOf(SmileFactory.class, smile.getFactory());
+        for (ObjectMapper mapper : List.of(json, cbor, smile)) {
+            assertSame(JsonRecyclerPools.sharedConcurrentDequePool(), mapper.getFactory()._getRecyclerPool(),
+                    mapper.getFactory().getFormatName());
+        }
+    }
+
+    @Test
+    void testBinaryFormats_RoundTripRecipe() throws IOException {
+        for (ObjectMapper mapper : List.of(json, cbor, smile)) {
+            byte[] bytes = mapper.writeValueAsBytes(BATCH);
+            List<Recipe> decoded = mapper.readValue(bytes, new TypeReference<>() {});
+            assertEquals(BATCH, decoded, mapper.getFactory().getFormatName());
+        }
+    }
+
+    @Test
+    void testBinaryFormats_SmallerThanJson() throws IOException {
+        int jsonSize = json.writeValueAsBytes(BATCH).length;
+
+        assertTrue(cbor.writeValueAsBytes(BATCH).length < jsonSize, "CBOR should be smaller than JSON");
+        assertTrue(smile.writeValueAsBytes(BATCH).length < jsonSize, "Smile should be smaller than JSON");
+    }
+
+    // Prints bytes on the wire (raw and gzipped) and average serialization time for a single recipe
+    // and for lists of 10 and 100 recipes.
+    // Excluded from the default build; run with: mvn test -Pbenchmark
+    @Test
+    @Tag("benchmark")
+    void benchmark_BytesAndSerializationTime() throws IOException {
+        System.out.printf("%-8s %8s %10s %10s %12s%n", "format", "recipes", "bytes", "gzipped", "us/op");
+        for (int size : List.of(1, 10, 100)) {
+            List<Recipe> recipes = BATCH.subList(0, size);
+            for (ObjectMapper mapper : List.of(json, cbor, smile)) {
+                byte[] bytes = mapper.writeValueAsBytes(recipes);
+
+                int warmup = 2_000;
+                int iterations = 5_000;
+                for (int i = 0; i < warmup; i++) {
+                    mapper.writeValueAsBytes(recipes);
+                }
+                long start = System.nanoTime();
+                for (int i = 0; i < iterations; i++) {
+                    mapper.writeValueAsBytes(recipes);
+                }
+                double micros = (System.nanoTime() - start) / 1_000.0 / iterations;
+
+                System.out.printf("%-8s %8d %10d %10d %12.1f%n",
+                        mapper.getFactory().getFormatName(), size, bytes.length, gzip(bytes).length, micros);
+                assertTrue(bytes.length > 0);
+            }
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        var out = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
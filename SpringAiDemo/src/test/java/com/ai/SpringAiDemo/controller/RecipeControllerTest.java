@@ -0,0 +1,78 @@
+package com.ai.SpringAiDemo.controller;
+
+import com.ai.SpringAiDemo.Model.Recipe;
+import com.ai.SpringAiDemo.config.RecipeCodecConfig;
+import com.ai.SpringAiDemo.service.RecipeJobService;
+import com.ai.SpringAiDemo.service.RecipeService;
+import com.ai.SpringAiDemo.service.UsageLedgerService;
+import com.ai.SpringAiDemo.service.UserHistoryService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(RecipeController.class)
+@Import(RecipeCodecConfig.class)
+class RecipeControllerTest {
+    private static final Recipe RECIPE = new Recipe("Garlic Rice", List.of("rice", "garlic"),
+            List.of("Cook rice", "Fry garlic", "Combine"), "20 minutes", 2, "easy");
+
+    private @Autowired MockMvc mockMvc;
+    private @MockitoBean RecipeService recipeService;
+    private @MockitoBean RecipeJobService recipeJobService;
+    private @MockitoBean UserHistoryService userHistoryService;
+    private @MockitoBean UsageLedgerService usageLedgerService;
+
+    @BeforeEach
+    void setUp() {
+        when(recipeService.createStructuredRecipe(anyString(), anyString(), anyString())).thenReturn(RECIPE);
+    }
+
+    @Test
+    void testGenerateStructured_DefaultsToJson() throws Exception {
+        byte[] body = mockMvc.perform(get("/api/recipes/generate-structured").param("ingredients", "rice"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(RECIPE, new ObjectMapper().readValue(body, Recipe.class));
+    }
+
+    @Test
+    void testGenerateStructured_AcceptCbor_ReturnsCbor() throws Exception {
+        byte[] body = mockMvc.perform(get("/api/recipes/generate-structured").param("ingredients", "rice")
+                        .accept(RecipeCodecConfig.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(RecipeCodecConfig.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(RECIPE, new CBORMapper().readValue(body, Recipe.class));
+    }
+
+    @Test
+    void testGenerateStructured_AcceptSmile_ReturnsSmile() throws Exception {
+        byte[] body = mockMvc.perform(get("/api/recipes/generate-structured").param("ingredients", "rice")
+                        .accept(RecipeCodecConfig.APPLICATION_SMILE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(RecipeCodecConfig.APPLICATION_SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(RECIPE, new SmileMapper().readValue(body, Recipe.class));
+    }
+}
@@ -0,0 +1,193 @@
+package com.ai.SpringAiDemo.service;
+
+import com.ai.SpringAiDemo.Model.RecipeJob;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecipeJobServiceTest {
+    private static final List<String> PARAMS = List.of("rice", "any", "none");
+
+    // One worker and a queue of one so tests control exactly what is running and what is waiting
+    private final RecipeJobService jobService =
+            new RecipeJobService(1, 1, Duration.ZERO, Duration.ofSeconds(5), Duration.ofSeconds(10));
+
+    @AfterEach
+    void tearDown() {
+        jobService.shutdown();
+    }
+
+    private static RecipeJob finished(RecipeJobService service, String jobId) throws Exception {
+        return service.awaitJob(jobId, Duration.ofSeconds(5)).orElseThrow().get(6, TimeUnit.SECONDS);
+    }
+
+    // Occupies the single worker until the returned latch is released
+    private static CountDownLatch blockWorker(RecipeJobService service) throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch started = new CountDownLatch(1);
+        service.submit(RecipeJob.Type.TEXT, null, PARAMS, () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "blocking";
+        });
+        started.await();
+        return release;
+    }
+
+    @Test
+    void testSubmit_CompletesWithResult() throws Exception {
+        RecipeJob submitted = jobService.submit(RecipeJob.Type.TEXT, null, PARAMS, () -> "Pasta");
+
+        RecipeJob finished = finished(jobService, submitted.id());
+
+        assertEquals(RecipeJob.Status.SUCCEEDED, finished.status());
+        assertEquals("Pasta", finished.result());
+        assertNotNull(finished.completedAt());
+    }
+
+    @Test
+    void testSubmit_FailingTask_ReportsError() throws Exception {
+        RecipeJob submitted = jobService.submit(RecipeJob.Type.SAFE, null, PARAMS, () -> {
+            throw new IllegalStateException("model unavailable");
+        });
+
+        RecipeJob finished = finished(jobService, submitted.id());
+
+        assertEquals(RecipeJob.Status.FAILED, finished.status());
+        assertEquals("model unavailable", finished.error());
+        assertNull(finished.result());
+    }
+
+    @Test
+    void testSubmit_TaskThrowsError_JobFails() throws Exception {
+        RecipeJob submitted = jobService.submit(RecipeJob.Type.SAFE, "error-1", PARAMS, () -> {
+            throw new AssertionError("boom");
+        });
+
+        RecipeJob finished = finished(jobService, submitted.id());
+
+        assertEquals(RecipeJob.Status.FAILED, finished.status());
+        assertEquals("boom", finished.error());
+        assertNotNull(finished.completedAt());
+    }
+
+    @Test
+    void testSubmit_SameIdempotencyKey_AttachesToExistingJob() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+
+        RecipeJob first = jobService.submit(RecipeJob.Type.TEXT, "retry-1", PARAMS, () -> calls.incrementAndGet());
+        RecipeJob retry = jobService.submit(RecipeJob.Type.TEXT, "retry-1", PARAMS, () -> calls.incrementAndGet());
+        finished(jobService, first.id());
+
+        assertEquals(first.id(), retry.id());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void testSubmit_SameIdempotencyKeyDifferentRequest_Conflict() {
+        jobService.submit(RecipeJob.Type.SAFE, "conflict-1", List.of("1", "rice", "any"), () -> "for user 1");
+
+        assertThrows(IdempotencyKeyConflictException.class, () -> jobService.submit(
+                RecipeJob.Type.SAFE, "conflict-1", List.of("2", "rice", "any"), () -> "for user 2"));
+        assertThrows(IdempotencyKeyConflictException.class, () -> jobService.submit(
+                RecipeJob.Type.TEXT, "conflict-1", List.of("1", "rice", "any"), () -> "other endpoint"));
+    }
+
+    @Test
+    void testSubmit_SafeJobQueuedAfterTextJob_RunsFirst() throws Exception {
+        var priorityService = new RecipeJobService(1, 10, Duration.ZERO, Duration.ofSeconds(5), Duration.ofSeconds(10));
+        try {
+            CountDownLatch release = blockWorker(priorityService);
+            List<RecipeJob.Type> order = new CopyOnWriteArrayList<>();
+
+            RecipeJob text = priorityService.submit(RecipeJob.Type.TEXT, null, PARAMS,
+                    () -> order.add(RecipeJob.Type.TEXT));
+            RecipeJob safe = priorityService.submit(RecipeJob.Type.SAFE, null, PARAMS,
+                    () -> order.add(RecipeJob.Type.SAFE));
+            release.countDown();
+            finished(priorityService, text.id());
+            finished(priorityService, safe.id());
+
+            assertEquals(List.of(RecipeJob.Type.SAFE, RecipeJob.Type.TEXT), order);
+        } finally {
+            priorityService.shutdown();
+        }
+    }
+
+    @Test
+    void testSubmit_TextJobQueuedLongerThanPriorityStep_NotOvertaken() throws Exception {
+        // TEXT is two steps below SAFE, so it wins once it has waited more than 2 * 20ms
+        var agingService = new RecipeJobService(1, 10, Duration.ZERO, Duration.ofSeconds(5), Duration.ofMillis(20));
+        try {
+            CountDownLatch release = blockWorker(agingService);
+            List<RecipeJob.Type> order = new CopyOnWriteArrayList<>();
+
+            RecipeJob text = agingService.submit(RecipeJob.Type.TEXT, null, PARAMS,
+                    () -> order.add(RecipeJob.Type.TEXT));
+            Thread.sleep(200);
+            RecipeJob safe = agingService.submit(RecipeJob.Type.SAFE, null, PARAMS,
+                    () -> order.add(RecipeJob.Type.SAFE));
+            release.countDown();
+            finished(agingService, text.id());
+            finished(agingService, safe.id());
+
+            assertEquals(List.of(RecipeJob.Type.TEXT, RecipeJob.Type.SAFE), order);
+        } finally {
+            agingService.shutdown();
+        }
+    }
+
+    @Test
+    void testAwaitJob_WaitRunsOut_ReturnsUnfinishedJob() throws Exception {
+        CountDownLatch release = blockWorker(jobService);
+        RecipeJob queued = jobService.submit(RecipeJob.Type.TEXT, null, PARAMS, () -> "queued");
+
+        RecipeJob polled = jobService.awaitJob(queued.id(), Duration.ofMillis(50)).orElseThrow()
+                .get(5, TimeUnit.SECONDS);
+        assertEquals(RecipeJob.Status.QUEUED, polled.status());
+
+        // The timed-out wait must not affect the job itself
+        release.countDown();
+        assertEquals(RecipeJob.Status.SUCCEEDED, finished(jobService, queued.id()).status());
+    }
+
+    @Test
+    void testAwaitJob_UnknownJob_Empty() {
+        assertTrue(jobService.awaitJob("missing", Duration.ofSeconds(1)).isEmpty());
+    }
+
+    @Test
+    void testSubmit_QueueFull_Rejected() throws InterruptedException {
+        CountDownLatch release = blockWorker(jobService);
+        jobService.submit(RecipeJob.Type.TEXT, null, PARAMS, () -> "queued");
+
+        assertThrows(RejectedExecutionException.class,
+                () -> jobService.submit(RecipeJob.Type.TEXT, null, PARAMS, () -> "rejected"));
+        release.countDown();
+    }
+
+    @Test
+    void testEvictExpiredJobs_RemovesFinishedJobs() throws Exception {
+        RecipeJob submitted = jobService.submit(RecipeJob.Type.TEXT, "evict-me", PARAMS, () -> "Soup");
+        finished(jobService, submitted.id());
+
+        jobService.evictExpiredJobs();
+
+        assertTrue(jobService.getJob(submitted.id()).isEmpty());
+        RecipeJob resubmitted = jobService.submit(RecipeJob.Type.TEXT, "evict-me", PARAMS, () -> "Soup");
+        assertNotEquals(submitted.id(), resubmitted.id());
+    }
+}
@@ -0,0 +1,64 @@
+package com.ai.SpringAiDemo.service;
+
+import com.ai.SpringAiDemo.persistence.UserRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+// Usage must be recorded for every model call, even when the output is empty or cannot be parsed
+class RecipeServiceUsageTest {
+    private final ChatClient chatClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+    private final UsageLedgerService usageLedgerService = mock(UsageLedgerService.class);
+    private RecipeService recipeService;
+
+    @BeforeEach
+    void setUp() {
+        ChatClient.Builder builder = mock(ChatClient.Builder.class);
+        when(builder.build()).thenReturn(chatClient);
+        recipeService = new RecipeService(builder, mock(UserRepository.class),
+                mock(UserHistoryService.class), usageLedgerService);
+    }
+
+    @SuppressWarnings("unchecked")
+    private void respondWith(ChatResponse response) {
+        when(chatClient.prompt().user(any(Consumer.class)).call().chatResponse()).thenReturn(response);
+    }
+
+    private static ChatResponse response(List<Generation> generations) {
+        return new ChatResponse(generations, ChatResponseMetadata.builder()
+                .model("gpt-4o-mini")
+                .usage(new DefaultUsage(100, 20))
+                .build());
+    }
+
+    @Test
+    void testCreateRecipe_EmptyResult_ReturnsNullAndRecordsUsage() {
+        ChatResponse response = response(List.of());
+        respondWith(response);
+
+        assertNull(recipeService.createRecipe("rice", "any", "none"));
+        verify(usageLedgerService).record(RecipeService.ENDPOINT_GENERATE, null, response);
+    }
+
+    @Test
+    void testCreateStructuredRecipe_UnparseableOutput_StillRecordsUsage() {
+        ChatResponse response = response(List.of(new Generation(new AssistantMessage("not a recipe"))));
+        respondWith(response);
+
+        assertThrows(RuntimeException.class,
+                () -> recipeService.createStructuredRecipe("rice", "any", "none"));
+        verify(usageLedgerService).record(RecipeService.ENDPOINT_STRUCTURED, null, response);
+    }
+}
@@ -0,0 +1,161 @@
+package com.ai.SpringAiDemo.service;
+
+import com.ai.SpringAiDemo.Model.UsageSummary;
+import com.ai.SpringAiDemo.domain.TokenUsage;
+import com.ai.SpringAiDemo.persistence.TokenUsageRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DataJpaTest
+class UsageLedgerServiceTest {
+    private @Autowired TokenUsageRepository usageRepository;
+
+    private UsageLedgerService ledger(long userBudget, long endpointBudget, String downgradeModel) {
+        var ledger = new UsageLedgerService(usageRepository, Duration.ofDays(1), userBudget, endpointBudget,
+                downgradeModel, "");
+        ledger.loadCurrentWindow();
+        return ledger;
+    }
+
+    private static ChatResponse response(int promptTokens, int completionTokens) {
+        return new ChatResponse(
+                List.of(new Generation(new AssistantMessage("recipe"))),
+                ChatResponseMetadata.builder()
+                        .model("gpt-4o-mini")
+                        .usage(new DefaultUsage(promptTokens, completionTokens))
+                        .build());
+    }
+
+    @Test
+    void testRecordAndFlush_AggregatesPerEndpointModelAndUser() {
+        var ledger = ledger(0, 0, "");
+        // Rows are stamped with the start of their one-minute bucket
+        Instant from = Instant.now().minus(Duration.ofMinutes(2));
+
+        ledger.record(RecipeService.ENDPOINT_SAFE, "1", response(100, 50));
+        ledger.record(RecipeService.ENDPOINT_SAFE, "1", response(200, 25));
+        ledger.record(RecipeService.ENDPOINT_GENERATE, null, response(10, 5));
+        ledger.flush();
+
+        List<UsageSummary> usage = ledger.getUsage(from, Instant.now().plusSeconds(1), RecipeService.ENDPOINT_SAFE, null);
+
+        assertEquals(1, usage.size());
+        UsageSummary summary = usage.get(0);
+        assertEquals("gpt-4o-mini", summary.model());
+        assertEquals("1", summary.userId());
+        assertEquals(2, summary.calls());
+        assertEquals(300, summary.promptTokens());
+        assertEquals(75, summary.completionTokens());
+    }
+
+    @Test
+    void testGetUsage_AnonymousCallsTaggedAnonymous() {
+        var ledger = ledger(0, 0, "");
+        // Rows are stamped with the start of their one-minute bucket
+        Instant from = Instant.now().minus(Duration.ofMinutes(2));
+
+        ledger.record(RecipeService.ENDPOINT_GENERATE, null, response(10, 5));
+        ledger.flush();
+
+        var usage = ledger.getUsage(from, Instant.now().plusSeconds(1), null, UsageLedgerService.ANONYMOUS);
+        assertEquals(1, usage.size());
+        assertEquals(15, usage.get(0).totalTokens());
+    }
+
+    @Test
+    void testCheckBudget_UserOverBudget_Downgrades() {
+        var ledger = ledger(100, 0, "gpt-4.1-nano");
+
+        assertTrue(ledger.checkBudget(RecipeService.ENDPOINT_SAFE, "1").isEmpty());
+        ledger.record(RecipeService.ENDPOINT_SAFE, "1", response(80, 20));
+
+        assertEquals("gpt-4.1-nano", ledger.checkBudget(RecipeService.ENDPOINT_SAFE, "1").orElseThrow());
+        assertTrue(ledger.checkBudget(RecipeService.ENDPOINT_SAFE, "2").isEmpty());
+    }
+
+    @Test
+    void testCheckBudget_UserOverBudgetWithoutDowngradeModel_Rejected() {
+        var ledger = ledger(100, 0, "");
+        ledger.record(RecipeService.ENDPOINT_SAFE, "1", response(80, 20));
+
+        var e = assertThrows(TokenBudgetExceededException.class,
+                () -> ledger.checkBudget(RecipeService.ENDPOINT_SAFE, "1"));
+        assertTrue(e.getMessage().endsWith("user 1"));
+    }
+
+    @Test
+    void testCheckBudget_AnonymousCalls_OnlyEndpointBudgetApplies() {
+        var ledger = ledger(100, 1_000, "");
+        ledger.record(RecipeService.ENDPOINT_GENERATE, null, response(400, 100));
+
+        assertTrue(ledger.checkBudget(RecipeService.ENDPOINT_GENERATE, null).isEmpty());
+
+        ledger.record(RecipeService.ENDPOINT_GENERATE, null, response(400, 100));
+        assertThrows(TokenBudgetExceededException.class,
+                () -> ledger.checkBudget(RecipeService.ENDPOINT_GENERATE, null));
+    }
+
+    @Test
+    void testConstructor_DowngradeToDefaultModel_Rejected() {
+        assertThrows(IllegalStateException.class, () -> new UsageLedgerService(usageRepository,
+                Duration.ofDays(1), 100, 0, "gpt-4o", "gpt-4o"));
+        // Without an explicit model Spring AI uses gpt-4o-mini
+        assertThrows(IllegalStateException.class, () -> new UsageLedgerService(usageRepository,
+                Duration.ofDays(1), 100, 0, "gpt-4o-mini", ""));
+        assertDoesNotThrow(() -> new UsageLedgerService(usageRepository,
+                Duration.ofDays(1), 100, 0, "gpt-4.1-nano", ""));
+        assertDoesNotThrow(() -> new UsageLedgerService(usageRepository,
+                Duration.ofDays(1), 100, 0, "", ""));
+    }
+
+    @Test
+    void testFlush_StampsRowsWithCallBucket() {
+        var ledger = ledger(0, 0, "");
+        Instant before = Instant.now();
+
+        ledger.record(RecipeService.ENDPOINT_SAFE, "bucket-1", response(10, 5));
+        ledger.flush();
+
+        TokenUsage row = usageRepository.findAll().stream()
+                .filter(usage -> usage.getUserId().equals("bucket-1"))
+                .findFirst()
+                .orElseThrow();
+        assertEquals(0, row.getRecordedAt().toEpochMilli() % Duration.ofMinutes(1).toMillis());
+        assertFalse(row.getRecordedAt().isAfter(Instant.now()));
+        assertTrue(row.getRecordedAt().isAfter(before.minus(Duration.ofMinutes(1))));
+    }
+
+    @Test
+    void testCheckBudget_EndpointOverBudget_Rejected() {
+        var ledger = ledger(0, 100, "gpt-4.1-nano");
+        ledger.record(RecipeService.ENDPOINT_GENERATE, null, response(80, 20));
+
+        assertThrows(TokenBudgetExceededException.class,
+                () -> ledger.checkBudget(RecipeService.ENDPOINT_GENERATE, "1"));
+        assertTrue(ledger.checkBudget(RecipeService.ENDPOINT_SAFE, "1").isEmpty());
+    }
+
+    @Test
+    void testLoadCurrentWindow_SeedsSpendFromFlushedUsage() {
+        var first = ledger(100, 0, "");
+        first.record(RecipeService.ENDPOINT_SAFE, "1", response(80, 20));
+        first.flush();
+
+        var restarted = ledger(100, 0, "");
+
+        assertThrows(TokenBudgetExceededException.class,
+                () -> restarted.checkBudget(RecipeService.ENDPOINT_SAFE, "1"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.ai.SpringAiDemo.service;
+
+import com.ai.SpringAiDemo.domain.RecipeHistoryEntry;
+import com.ai.SpringAiDemo.domain.RecipeHistoryEntry.Feedback;
+import com.ai.SpringAiDemo.persistence.RecipeHistoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@DataJpaTest
+@Import(UserHistoryService.class)
+class UserHistoryServiceTest {
+    // The working set lives as long as the cached test context, so each test uses its own user ids
+    private @Autowired UserHistoryService userHistoryService;
+
+    private static final String RECIPE = """
+            [Garlic Rice Bowl]
+
+            Ingredients:
+            - rice
+            """;
+
+    @Test
+    void testRequestKey_IgnoresCaseOrderAndSpacing() {
+        String key = UserHistoryService.requestKey(List.of("peanuts", "dairy"), "rice, Chicken", "Asian");
+        String same = UserHistoryService.requestKey(List.of("Dairy", "peanuts"), "chicken,rice ", " asian");
+
+        assertEquals(key, same);
+    }
+
+    @Test
+    void testRequestKey_DifferentAllergens_DifferentKey() {
+        String key = UserHistoryService.requestKey(List.of("peanuts"), "rice", "any");
+        String otherAllergens = UserHistoryService.requestKey(List.of("peanuts", "soy"), "rice", "any");
+
+        assertNotEquals(key, otherAllergens);
+    }
+
+    @Test
+    void testFindRepeat_ReturnsRecordedRecipe() {
+        String key = UserHistoryService.requestKey(List.of(), "rice", "any");
+        userHistoryService.record("repeat-1", key, RECIPE);
+
+        assertEquals(RECIPE, userHistoryService.findRepeat("repeat-1", key).orElseThrow());
+        assertTrue(userHistoryService.findRepeat("repeat-2", key).isEmpty());
+    }
+
+    @Test
+    void testFindRepeat_DislikedRecipe_NotServedAgain() {
+        String key = UserHistoryService.requestKey(List.of(), "rice", "any");
+        var item = userHistoryService.record("disliked-1", key, RECIPE);
+
+        userHistoryService.recordFeedback("disliked-1", item.id(), Feedback.DISLIKED);
+
+        assertTrue(userHistoryService.findRepeat("disliked-1", key).isEmpty());
+    }
+
+    @Test
+    void testRecordFeedback_OtherUsersEntry_NotFound() {
+        var item = userHistoryService.record("other-1", "key", RECIPE);
+
+        assertTrue(userHistoryService.recordFeedback("other-2", item.id(), Feedback.LIKED).isEmpty());
+    }
+
+    @Test
+    void testSummarize_UsesTitlesAndFeedback() {
+        assertEquals("none", userHistoryService.summarize("summary-1"));
+
+        var item = userHistoryService.record("summary-1", "key", RECIPE);
+        userHistoryService.recordFeedback("summary-1", item.id(), Feedback.LIKED);
+
+        String summary = userHistoryService.summarize("summary-1");
+        assertTrue(summary.contains("Liked: Garlic Rice Bowl"));
+        assertTrue(summary.contains("Recently received: Garlic Rice Bowl"));
+        assertFalse(summary.contains("Ingredients"));
+    }
+
+    @Test
+    void testRecord_DuringColdLoad_EntryNotLost() throws Exception {
+        // Mocked repository so the cold load can be held open while another thread records
+        var repository = mock(RecipeHistoryRepository.class);
+        var service = new UserHistoryService(repository, 10, 20);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean firstLoad = new AtomicBoolean(true);
+        RecipeHistoryEntry[] saved = new RecipeHistoryEntry[1];
+
+        when(repository.save(any())).thenAnswer(invocation -> {
+            RecipeHistoryEntry entry = invocation.getArgument(0);
+            ReflectionTestUtils.setField(entry, "id", 1L);
+            saved[0] = entry;
+            return entry;
+        });
+        when(repository.findByUserIdOrderByCreatedAtDesc(eq("race-1"), any(Pageable.class))).thenAnswer(invocation -> {
+            if (firstLoad.getAndSet(false)) {
+                // Stale read: taken before the concurrent save
+                loading.countDown();
+                release.await();
+                return List.of();
+            }
+            return saved[0] != null ? List.of(saved[0]) : List.of();
+        });
+
+        var coldLoad = CompletableFuture.supplyAsync(() -> service.getHistory("race-1"));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        var item = service.record("race-1", "key", RECIPE);
+        release.countDown();
+        coldLoad.get(5, TimeUnit.SECONDS);
+
+        List<UserHistoryService.HistoryItem> history = service.getHistory("race-1");
+        assertEquals(1, history.size());
+        assertEquals(item.id(), history.get(0).id());
+    }
+}